@@ -0,0 +1,150 @@
+/*
+This file is part of the JSONConf project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.jsonconf;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost access tracing adds to {@link JSONConf#getValue(String)}.
+ * <p/>
+ *
+ * Run it via <code>gradle jmh</code>: it fails if recording a read costs more than
+ * {@link #MAX_OVERHEAD} of an untraced read.
+ * The cost of recording is measured on its own because the run-to-run variation of
+ * {@link JSONConf#getValue(String)} is bigger than the cost itself; the traced reads
+ * are measured too, for reference.
+ * JMH options can be passed via <code>-Pargs="..."</code>.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JSONConfAccessTraceBenchmark {
+
+    /** Maximum slow down of a traced read, compared to an untraced one */
+    public static final double MAX_OVERHEAD = 0.05;
+
+    private static final String UNTRACED_BENCHMARK = "untraced";
+    private static final String RECORD_READ_BENCHMARK_PREFIX = "recordRead";
+
+    private JSONConf untraced;
+    private JSONConf traced;
+    private JSONConf tracedWithCallSites;
+    private JSONConf tracedChild;
+    private JSONConfAccessTrace trace;
+    private JSONConfAccessTrace traceWithCallSites;
+
+    @Setup
+    public void setup() {
+        untraced = new JSONConfBuilder("default-config.json").build();
+        traced = new JSONConfBuilder("default-config.json").withAccessTracing(0).build();
+        tracedWithCallSites = new JSONConfBuilder("default-config.json").withAccessTracing(1000).build();
+        tracedChild = new JSONConfBuilder("default-config.json").withAccessTracing(0).build().getChild("shared");
+        trace = traced.getAccessTrace();
+        traceWithCallSites = tracedWithCallSites.getAccessTrace();
+    }
+
+    @Benchmark
+    public Object untraced() {
+        return untraced.getValue("shared.shared_field_obj.key");
+    }
+
+    @Benchmark
+    public Object traced() {
+        return traced.getValue("shared.shared_field_obj.key");
+    }
+
+    @Benchmark
+    public Object tracedWithCallSites() {
+        return tracedWithCallSites.getValue("shared.shared_field_obj.key");
+    }
+
+    @Benchmark
+    public Object tracedChild() {
+        return tracedChild.getValue("shared_field_obj.key");
+    }
+
+    @Benchmark
+    public void recordRead() {
+        trace.recordRead(null, "shared.shared_field_obj.key");
+    }
+
+    @Benchmark
+    public void recordReadWithCallSites() {
+        traceWithCallSites.recordRead(null, "shared.shared_field_obj.key");
+    }
+
+    @Benchmark
+    public void recordReadChild() {
+        trace.recordRead("shared", "shared_field_obj.key");
+    }
+
+    public static void main(String[] args) throws Exception {
+        Collection<RunResult> results = new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .include(JSONConfAccessTraceBenchmark.class.getSimpleName())
+                .build())
+                .run();
+
+        // Average time of each benchmark, by name
+        Map<String, Double> scores = new HashMap<String, Double>();
+        for (RunResult result : results) {
+            String benchmark = result.getParams().getBenchmark();
+            scores.put(benchmark.substring(benchmark.lastIndexOf('.') + 1), result.getPrimaryResult().getScore());
+        }
+
+        Double untracedScore = scores.get(UNTRACED_BENCHMARK);
+        if (null == untracedScore) {
+            throw new RunnerException("Benchmark '" + UNTRACED_BENCHMARK + "' did not run");
+        }
+        for (Map.Entry<String, Double> score : scores.entrySet()) {
+            if (!score.getKey().startsWith(RECORD_READ_BENCHMARK_PREFIX)) {
+                continue;
+            }
+            double overhead = score.getValue() / untracedScore;
+            System.out.println(String.format("%s: %.1f%% overhead", score.getKey(), overhead * 100));
+            if (overhead > MAX_OVERHEAD) {
+                throw new RuntimeException(String.format(
+                        "Access Tracing overhead of '%s' is %.1f%%: above the maximum of %.1f%%",
+                        score.getKey(), overhead * 100, MAX_OVERHEAD * 100));
+            }
+        }
+    }
+}
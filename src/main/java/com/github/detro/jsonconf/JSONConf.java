@@ -35,6 +35,8 @@ public class JSONConf {
     private static final String REFERENCE_PREFIX = "@";
 
     private JsonObject internalJsonObject;
+    private volatile JSONConfAccessTrace accessTrace = null;
+    private String accessTracePathPrefix = null;
 
     /**
      * JSONConf main class.
@@ -63,6 +65,11 @@ public class JSONConf {
      * @return Parameter value, if found; "null" otherwise.
      */
     public <T> T getValue(String jsonPath) {
+        JSONConfAccessTrace trace = accessTrace;
+        if (null != trace) {
+            trace.recordRead(accessTracePathPrefix, jsonPath);
+        }
+
         T result = JsonPath.read(internalJsonObject.toString(), jsonPath);
 
         // If result is a String and begins with the Reference Prefix, use it as input for recursive call
@@ -102,12 +109,53 @@ public class JSONConf {
     public JSONConf getChild(String childObjectKey) {
         try {
             JsonObject childObj = internalJsonObject.getAsJsonObject(childObjectKey);
-            return new JSONConf(childObj);
+            JSONConf child = new JSONConf(childObj);
+
+            // Child shares the access trace, with paths relative to the root
+            JSONConfAccessTrace trace = accessTrace;
+            if (null != trace) {
+                child.accessTracePathPrefix = null == accessTracePathPrefix ? childObjectKey : accessTracePathPrefix + "." + childObjectKey;
+                child.accessTrace = trace;
+            }
+            return child;
         } catch (ClassCastException cce) {
             throw new RuntimeException(String.format("No Child Configuration '%s' found", childObjectKey), cce);
         }
     }
 
+    /**
+     * Enables tracing of the reads done via {@link #getValue(String)} on this JSONConf
+     * and on the children generated from it after this call.
+     * Use {@link #getAccessTrace()} to find out never read keys and most read paths.
+     *
+     * NOTE: tracing adds a cost to every read. Recording call sites adds a bigger cost
+     * to the sampled reads: use a high sampling rate on hot code paths.
+     *
+     * @param callSiteSamplingRate Record the call site of 1 read every "callSiteSamplingRate" (per thread).
+     *                             0 or less disables call site recording.
+     * @return Same JSONConf instance (for chaining)
+     * @throws RuntimeException if tracing is already enabled, or this is a child of a traced JSONConf
+     */
+    public synchronized JSONConf enableAccessTracing(int callSiteSamplingRate) {
+        if (null != accessTracePathPrefix) {
+            throw new RuntimeException("Access Tracing can only be enabled on a root JSONConf");
+        }
+        if (null != accessTrace) {
+            throw new RuntimeException("Access Tracing already enabled");
+        }
+        this.accessTrace = new JSONConfAccessTrace(internalJsonObject, callSiteSamplingRate);
+        return this;
+    }
+
+    /**
+     * Returns the access trace of this JSONConf.
+     *
+     * @return The {@code JSONConfAccessTrace} if tracing is enabled; "null" otherwise.
+     */
+    public JSONConfAccessTrace getAccessTrace() {
+        return accessTrace;
+    }
+
     /**
      * Returns the "internal" JSON Object on which this JSONConf is based.
      * NOTE: modifying this alters the JSONConf object directly. Use with care.
@@ -0,0 +1,402 @@
+/*
+This file is part of the JSONConf project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.jsonconf;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Records the reads done on a {@link JSONConf} (and its children), to find out
+ * which configuration keys are never read and which paths are read the most.
+ * <p/>
+ *
+ * Every thread records its reads in its own buffer, written only by that thread:
+ * reads never contend on a lock. Buffers are merged only when the statistics
+ * are requested, so these might miss reads happening at the same time.
+ * <p/>
+ *
+ * The buffers of terminated threads are folded into a shared aggregate every time
+ * a new thread starts reading, and every time the statistics are requested: memory
+ * is bounded by the number of live threads reading the configuration (times the
+ * number of distinct paths each of them reads), not by the number of threads ever started.
+ * <p/>
+ *
+ * Paths are recorded relative to the root JSONConf, as keys separated by "."
+ * followed by array indexes, if any: <code>name</code>, <code>$.name</code> and
+ * <code>['name']</code> are all recorded as <code>name</code>.
+ * <p/>
+ *
+ * Instances of this are created via {@link JSONConf#enableAccessTracing(int)}
+ * or {@link JSONConfBuilder#withAccessTracing(int)}.
+ */
+public class JSONConfAccessTrace {
+
+    // Wildcards, deep scans and any array selector other than a plain index
+    private static final Pattern NON_CONCRETE_PATH_PATTERN = Pattern.compile("\\*|\\.\\.|\\[(?!\\s*\\d+\\s*\\])");
+
+    private final JsonObject rootJsonObject;
+    private final int callSiteSamplingRate;
+
+    private final Queue<ThreadBuffer> buffers = new ConcurrentLinkedQueue<ThreadBuffer>();
+    private final ThreadLocal<ThreadBuffer> threadBuffer = new ThreadLocal<ThreadBuffer>() {
+        @Override
+        protected ThreadBuffer initialValue() {
+            ThreadBuffer buffer = new ThreadBuffer(Thread.currentThread());
+            synchronized (retiredStatsLock) {
+                retireDeadBuffers();
+                buffers.add(buffer);
+            }
+            return buffer;
+        }
+    };
+
+    // Statistics of the threads that have terminated: guarded by "retiredStatsLock"
+    private final Object retiredStatsLock = new Object();
+    private final Map<String, PathStats> retiredStats = new HashMap<String, PathStats>();
+
+    /**
+     * @param rootJsonObject       JSON Object of the root JSONConf being traced
+     * @param callSiteSamplingRate Record the call site of 1 read every "callSiteSamplingRate" (per thread).
+     *                             0 or less disables call site recording.
+     */
+    JSONConfAccessTrace(JsonObject rootJsonObject, int callSiteSamplingRate) {
+        this.rootJsonObject = rootJsonObject;
+        this.callSiteSamplingRate = callSiteSamplingRate;
+    }
+
+    /**
+     * Records a read.
+     *
+     * @param pathPrefix Path of the JSONConf being read, relative to the root JSONConf ("null" for the root itself)
+     * @param jsonPath   JSON Path read, relative to the JSONConf being read
+     */
+    void recordRead(String pathPrefix, String jsonPath) {
+        ThreadBuffer buffer = threadBuffer.get();
+        long now = System.currentTimeMillis();
+
+        // Normalise the path only the first time this thread reads it
+        String path = buffer.normalisedPaths.get(jsonPath);
+        if (null == path) {
+            path = normalisePath(jsonPath);
+            buffer.normalisedPaths.put(jsonPath, path);
+        }
+        if (null != pathPrefix) {
+            path = path.length() == 0
+                    ? pathPrefix
+                    : (path.startsWith("[") || path.startsWith(".") ? pathPrefix + path : pathPrefix + "." + path);
+        }
+
+        ThreadPathStats stats = buffer.stats.get(path);
+        if (null == stats) {
+            stats = new ThreadPathStats(now);
+            buffer.stats.put(path, stats);
+        }
+        // Only the owner thread writes these: no need for atomic updates
+        stats.readCount++;
+        stats.lastAccess = now;
+
+        if (callSiteSamplingRate > 0 && ++buffer.readsSinceLastSample >= callSiteSamplingRate) {
+            buffer.readsSinceLastSample = 0;
+            String callSite = findCallSite();
+            if (null != callSite) {
+                stats.callSites.put(callSite, Boolean.TRUE);
+            }
+        }
+    }
+
+    /**
+     * Merges the reads recorded by all threads so far.
+     *
+     * @return Statistics for every distinct JSON Path read, sorted by path.
+     */
+    public SortedMap<String, PathStats> getStats() {
+        SortedMap<String, PathStats> result = new TreeMap<String, PathStats>();
+
+        synchronized (retiredStatsLock) {
+            retireDeadBuffers();
+
+            for (PathStats retired : retiredStats.values()) {
+                statsFor(result, retired.path).merge(retired);
+            }
+            for (ThreadBuffer buffer : buffers) {
+                buffer.mergeInto(result);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Folds the buffers of terminated threads into the retired statistics.
+     * Must be called holding "retiredStatsLock".
+     */
+    private void retireDeadBuffers() {
+        for (Iterator<ThreadBuffer> iter = buffers.iterator(); iter.hasNext(); ) {
+            ThreadBuffer buffer = iter.next();
+            if (!buffer.isOwnerAlive()) {
+                buffer.mergeInto(retiredStats);
+                iter.remove();
+            }
+        }
+    }
+
+    private static PathStats statsFor(Map<String, PathStats> statsByPath, String path) {
+        PathStats stats = statsByPath.get(path);
+        if (null == stats) {
+            stats = new PathStats(path);
+            statsByPath.put(path, stats);
+        }
+        return stats;
+    }
+
+    /**
+     * Returns the JSON Paths read the most.
+     * These are good candidates to be read once and cached by the client code.
+     *
+     * @param limit Maximum number of paths to return
+     * @return Statistics of the paths read the most, most read first.
+     */
+    public List<PathStats> getHotPaths(int limit) {
+        if (limit < 0) {
+            throw new RuntimeException(String.format("Invalid Hot Paths limit '%d': it can't be negative", limit));
+        }
+
+        List<PathStats> result = new ArrayList<PathStats>(getStats().values());
+        Collections.sort(result, new Comparator<PathStats>() {
+            @Override
+            public int compare(PathStats a, PathStats b) {
+                return a.readCount < b.readCount ? 1 : (a.readCount == b.readCount ? 0 : -1);
+            }
+        });
+        return result.subList(0, Math.min(limit, result.size()));
+    }
+
+    /**
+     * Returns the keys of the configuration that have never been read, neither directly
+     * nor by reading one of their parents.
+     * Keys are expressed as paths of Object keys separated by "."; arrays are considered keys
+     * (i.e. reading any element of an array counts as reading the array).
+     * <p/>
+     *
+     * Reads that can match more than one key (wildcards, deep scans, filters) are accounted
+     * conservatively: the whole subtree under their last concrete key is considered read,
+     * or the whole configuration if they have no concrete key (e.g. <code>$</code> or <code>$..key</code>).
+     *
+     * @return Never read keys, sorted.
+     */
+    public SortedSet<String> getUnreadKeys() {
+        // Reduce the paths read to their concrete keys, and collect all their parents too
+        Set<String> readPaths = new HashSet<String>();
+        Set<String> readPathsAndParents = new HashSet<String>();
+        for (String jsonPath : getStats().keySet()) {
+            String path = concreteKeyPath(jsonPath);
+            if (path.length() == 0) {
+                // The whole configuration might have been read
+                return new TreeSet<String>();
+            }
+            readPaths.add(path);
+            for (int idx = path.indexOf('.'); idx >= 0; idx = path.indexOf('.', idx + 1)) {
+                readPathsAndParents.add(path.substring(0, idx));
+            }
+            readPathsAndParents.add(path);
+        }
+
+        SortedSet<String> result = new TreeSet<String>();
+        collectUnreadKeys(rootJsonObject, null, readPaths, readPathsAndParents, result);
+        return result;
+    }
+
+    private static void collectUnreadKeys(JsonObject obj,
+                                          String path,
+                                          Set<String> readPaths,
+                                          Set<String> readPathsAndParents,
+                                          Set<String> result) {
+        for (Map.Entry<String, JsonElement> entry : obj.entrySet()) {
+            String key = null == path ? entry.getKey() : path + "." + entry.getKey();
+
+            if (readPaths.contains(key)) {
+                // Read as a whole
+                continue;
+            }
+            if (entry.getValue().isJsonObject() && entry.getValue().getAsJsonObject().entrySet().size() > 0) {
+                // Look for unread keys further down the tree
+                collectUnreadKeys(entry.getValue().getAsJsonObject(), key, readPaths, readPathsAndParents, result);
+            } else if (!readPathsAndParents.contains(key)) {
+                result.add(key);
+            }
+        }
+    }
+
+    /**
+     * Normalises a JSON Path to keys separated by ".", without root, keeping array indexes.
+     * For example <code>$['a key'].array[2].value</code> becomes <code>a key.array[2].value</code>.
+     */
+    static String normalisePath(String jsonPath) {
+        String path = jsonPath.trim()
+                .replaceAll("\\[\\s*['\"](.*?)['\"]\\s*\\]", ".$1")   //< ['key'] -> .key
+                .replaceAll("^\\$", "");
+        // Keep the leading ".." of a deep scan
+        return path.startsWith(".") && !path.startsWith("..") ? path.substring(1) : path;
+    }
+
+    /**
+     * Reduces a normalised path to the keys it certainly reads: up to the first wildcard,
+     * deep scan or filter, without array indexes.
+     * For example <code>a.b[2].*.c</code> becomes <code>a.b</code>, and <code>..c</code> becomes empty.
+     */
+    static String concreteKeyPath(String path) {
+        Matcher matcher = NON_CONCRETE_PATH_PATTERN.matcher(path);
+        if (matcher.find()) {
+            path = path.substring(0, matcher.start());
+        }
+        path = path.replaceAll("\\[\\s*\\d+\\s*\\]", "");    //< [0] -> nothing
+        return path.endsWith(".") ? path.substring(0, path.length() - 1) : path;
+    }
+
+    /**
+     * Finds the first frame of the current stack outside of JSONConf itself.
+     */
+    private static String findCallSite() {
+        for (StackTraceElement frame : new Throwable().getStackTrace()) {
+            String className = frame.getClassName();
+            if (!className.equals(JSONConf.class.getName()) && !className.equals(JSONConfAccessTrace.class.getName())) {
+                return frame.toString();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Statistics of a JSON Path read.
+     */
+    public static class PathStats {
+
+        private final String path;
+        private long readCount = 0;
+        private long firstAccess = Long.MAX_VALUE;
+        private long lastAccess = Long.MIN_VALUE;
+        private final SortedSet<String> callSites = new TreeSet<String>();
+
+        PathStats(String path) {
+            this.path = path;
+        }
+
+        private void merge(long readCount, long firstAccess, long lastAccess, Collection<String> callSites) {
+            this.readCount += readCount;
+            this.firstAccess = Math.min(this.firstAccess, firstAccess);
+            this.lastAccess = Math.max(this.lastAccess, lastAccess);
+            this.callSites.addAll(callSites);
+        }
+
+        private void merge(PathStats other) {
+            merge(other.readCount, other.firstAccess, other.lastAccess, other.callSites);
+        }
+
+        /** @return JSON Path read */
+        public String getPath() {
+            return path;
+        }
+
+        /** @return Number of times the path was read */
+        public long getReadCount() {
+            return readCount;
+        }
+
+        /** @return Time of the first read (milliseconds since epoch) */
+        public long getFirstAccess() {
+            return firstAccess;
+        }
+
+        /** @return Time of the last read (milliseconds since epoch) */
+        public long getLastAccess() {
+            return lastAccess;
+        }
+
+        /** @return Sampled call sites of the reads (empty if call site recording is disabled) */
+        public SortedSet<String> getCallSites() {
+            return callSites;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: read %d times, first at %d, last at %d, from %s",
+                    path, readCount, firstAccess, lastAccess, callSites);
+        }
+    }
+
+    /**
+     * Reads recorded by a single thread.
+     * Written only by the owner thread; read by any thread when merging.
+     */
+    private static class ThreadBuffer {
+        private final WeakReference<Thread> owner;
+        private final Map<String, ThreadPathStats> stats = new ConcurrentHashMap<String, ThreadPathStats>();
+        // Only ever accessed by the owner thread
+        private final Map<String, String> normalisedPaths = new HashMap<String, String>();
+        private int readsSinceLastSample = 0;
+
+        private ThreadBuffer(Thread owner) {
+            this.owner = new WeakReference<Thread>(owner);
+        }
+
+        private boolean isOwnerAlive() {
+            Thread ownerThread = owner.get();
+            return null != ownerThread && ownerThread.isAlive();
+        }
+
+        private void mergeInto(Map<String, PathStats> statsByPath) {
+            for (Map.Entry<String, ThreadPathStats> entry : stats.entrySet()) {
+                ThreadPathStats threadStats = entry.getValue();
+                statsFor(statsByPath, entry.getKey()).merge(
+                        threadStats.readCount,
+                        threadStats.firstAccess,
+                        threadStats.lastAccess,
+                        threadStats.callSites.keySet());
+            }
+        }
+    }
+
+    private static class ThreadPathStats {
+        private final long firstAccess;
+        private volatile long readCount = 0;
+        private volatile long lastAccess;
+        private final Map<String, Boolean> callSites = new ConcurrentHashMap<String, Boolean>();
+
+        private ThreadPathStats(long firstAccess) {
+            this.firstAccess = firstAccess;
+            this.lastAccess = firstAccess;
+        }
+    }
+}
@@ -47,11 +47,52 @@ import java.util.*;
  * Particular attention needs to be given to the "user" JSON files.
  * The final JSONConf can be the UNION of many of those: the order in which
  * this UNION is executed is based on the order in which they are provided.
+ * <p/>
+ *
+ * By default, an array in a later file replaces the array with the same path
+ * in the earlier one. A different {@link ArrayMergeStrategy} can be declared
+ * per path, either via {@link #withArrayMergeStrategy(String, ArrayMergeStrategy)}
+ * or within the {@link #METADATA_KEY} section of the "default" JSON file:
+ * <pre>
+ *     {
+ *         "_jsonconf" : {
+ *             "arrayMerge" : {
+ *                 "allowlist" : "append",
+ *                 "servers" : { "strategy" : "merge_by_key", "key" : "id" }
+ *             }
+ *         },
+ *         ...
+ *     }
+ * </pre>
  */
 public class JSONConfBuilder {
 
     public static final String DEFAULT_CLI_PROPERTIES_ARRAY_NAME = "json";
 
+    /**
+     * Key of the (optional) metadata section of the "default" JSON file.
+     * This section is never part of the resulting JSONConf.
+     */
+    public static final String METADATA_KEY = "_jsonconf";
+
+    private static final String METADATA_ARRAY_MERGE_KEY = "arrayMerge";
+    private static final String METADATA_STRATEGY_KEY = "strategy";
+    private static final String METADATA_KEY_FIELD_KEY = "key";
+
+    /**
+     * How 2 arrays found at the same path are united.
+     */
+    public enum ArrayMergeStrategy {
+        /** Array "B" replaces array "A" (default) */
+        REPLACE,
+        /** Elements of "B" are appended to the elements of "A" */
+        APPEND,
+        /** Elements at the same index are united (Objects) or replaced (anything else) */
+        MERGE_BY_INDEX,
+        /** Object elements sharing the same value for a key field are united, the rest is appended */
+        MERGE_BY_KEY
+    }
+
     private static final Gson DEFAULT_GSON = new GsonBuilder()
             .serializeNulls()
             .create();
@@ -61,6 +102,10 @@ public class JSONConfBuilder {
     private Properties sysProps = System.getProperties();
     private String CLIPropsArrayName = DEFAULT_CLI_PROPERTIES_ARRAY_NAME;
     private Gson gson = DEFAULT_GSON;
+    private Map<String, ArrayMergeStrategy> arrayMergeStrategies = new HashMap<String, ArrayMergeStrategy>();
+    private Map<String, String> arrayMergeKeyFields = new HashMap<String, String>();
+    private boolean accessTracing = false;
+    private int accessTracingCallSiteSamplingRate = 0;
 
     /**
      * Creates a ConfigurationBuilder (Builder Pattern)
@@ -136,6 +181,60 @@ public class JSONConfBuilder {
         return this;
     }
 
+    /**
+     * Declare how arrays found at the given path are united.
+     *
+     * The path is made of Object keys separated by ".", for example "shared.servers".
+     * Arrays nested within the elements of a merged array are addressed by the path
+     * of the outer array followed by their key, for example "shared.servers.tags".
+     * Strategies declared here take precedence over the ones declared in the
+     * {@link #METADATA_KEY} section of the "default" JSON file.
+     *
+     * @param jsonPath Path to the array
+     * @param strategy Strategy to use (not {@link ArrayMergeStrategy#MERGE_BY_KEY}:
+     *                 use {@link #withArrayMergeByKey(String, String)} instead)
+     * @return Same ConfigurationBuilder instance (for chaining)
+     */
+    public JSONConfBuilder withArrayMergeStrategy(String jsonPath, ArrayMergeStrategy strategy) {
+        if (ArrayMergeStrategy.MERGE_BY_KEY == strategy) {
+            throw new RuntimeException(String.format(
+                    "Array Merge Strategy '%s' for '%s' requires a key field",
+                    strategy, jsonPath));
+        }
+        this.arrayMergeStrategies.put(jsonPath, strategy);
+        this.arrayMergeKeyFields.remove(jsonPath);
+        return this;
+    }
+
+    /**
+     * Declare that arrays found at the given path are united by key field:
+     * Object elements of "B" are united to the element of "A" with the same
+     * value for the key field, or appended if none is found.
+     *
+     * @param jsonPath Path to the array (see {@link #withArrayMergeStrategy(String, ArrayMergeStrategy)})
+     * @param keyField Name of the field identifying each element of the array
+     * @return Same ConfigurationBuilder instance (for chaining)
+     */
+    public JSONConfBuilder withArrayMergeByKey(String jsonPath, String keyField) {
+        this.arrayMergeStrategies.put(jsonPath, ArrayMergeStrategy.MERGE_BY_KEY);
+        this.arrayMergeKeyFields.put(jsonPath, keyField);
+        return this;
+    }
+
+    /**
+     * Enable tracing of the reads done on the built JSONConf.
+     *
+     * @param callSiteSamplingRate Record the call site of 1 read every "callSiteSamplingRate" (per thread).
+     *                             0 or less disables call site recording.
+     * @return Same ConfigurationBuilder instance (for chaining)
+     * @see JSONConf#enableAccessTracing(int)
+     */
+    public JSONConfBuilder withAccessTracing(int callSiteSamplingRate) {
+        this.accessTracing = true;
+        this.accessTracingCallSiteSamplingRate = callSiteSamplingRate;
+        return this;
+    }
+
     /**
      * Builds the Configuration, based on the given parameters.
      *
@@ -148,9 +247,23 @@ public class JSONConfBuilder {
         // Start from the default configuration
         JsonObject result = loadJsonFromFile(defaultConfFilePath);
 
+        // Array Merge Strategies: the ones declared in the default configuration metadata,
+        // overridden by the ones declared on this builder
+        Map<String, ArrayMergeStrategy> strategies = new HashMap<String, ArrayMergeStrategy>();
+        Map<String, String> keyFields = new HashMap<String, String>();
+        readArrayMergeMetadata(result, strategies, keyFields);
+        strategies.putAll(arrayMergeStrategies);
+        for (String jsonPath : arrayMergeStrategies.keySet()) {
+            keyFields.remove(jsonPath);
+        }
+        keyFields.putAll(arrayMergeKeyFields);
+        result.remove(METADATA_KEY);
+
         // United the User configuration (one at a time, if any)
         for (String userConfFilePath : userConfFilePaths) {
-            result = union(result, loadJsonFromFile(userConfFilePath));
+            JsonObject userConf = loadJsonFromFile(userConfFilePath);
+            userConf.remove(METADATA_KEY);
+            result = union(result, userConf, strategies, keyFields, null);
         }
 
         // Unite CLI Configuration (one at a time, if any)
@@ -160,10 +273,97 @@ public class JSONConfBuilder {
         while (sysProps.getProperty(String.format(idxFormat, idx)) != null) {
             result = union(
                     result,
-                    jsonPathAssignmentToJsonObject(sysProps.getProperty(String.format(idxFormat, idx++))));
+                    jsonPathAssignmentToJsonObject(sysProps.getProperty(String.format(idxFormat, idx++))),
+                    strategies,
+                    keyFields,
+                    null);
         }
 
-        return new JSONConf(result);
+        JSONConf conf = new JSONConf(result);
+        if (accessTracing) {
+            conf.enableAccessTracing(accessTracingCallSiteSamplingRate);
+        }
+        return conf;
+    }
+
+    /**
+     * Reads the Array Merge Strategies declared in the metadata section of a JsonObject, if any.
+     *
+     * @param conf      JsonObject that might contain a {@link #METADATA_KEY} section
+     * @param strategies Map to fill with "path -> strategy"
+     * @param keyFields  Map to fill with "path -> key field" (for {@link ArrayMergeStrategy#MERGE_BY_KEY})
+     */
+    protected static void readArrayMergeMetadata(JsonObject conf,
+                                                 Map<String, ArrayMergeStrategy> strategies,
+                                                 Map<String, String> keyFields) {
+        if (!conf.has(METADATA_KEY)) {
+            return;
+        }
+        JsonElement metadata = conf.get(METADATA_KEY);
+        if (!metadata.isJsonObject()) {
+            throw new RuntimeException(String.format(
+                    "Malformed Array Merge Strategy declaration for '%s': %s",
+                    METADATA_KEY, metadata));
+        }
+        JsonElement arrayMerge = metadata.getAsJsonObject().get(METADATA_ARRAY_MERGE_KEY);
+        if (null == arrayMerge) {
+            return;
+        }
+        if (!arrayMerge.isJsonObject()) {
+            throw new RuntimeException(String.format(
+                    "Malformed Array Merge Strategy declaration for '%s.%s': %s",
+                    METADATA_KEY, METADATA_ARRAY_MERGE_KEY, arrayMerge));
+        }
+
+        for (Map.Entry<String, JsonElement> entry : arrayMerge.getAsJsonObject().entrySet()) {
+            String jsonPath = entry.getKey();
+            JsonElement declaration = entry.getValue();
+            String strategyName;
+            String keyField = null;
+
+            if (declaration.isJsonPrimitive()) {
+                // Declared as "path" : "strategy"
+                strategyName = declaration.getAsString();
+            } else if (declaration.isJsonObject()
+                    && isPrimitiveField(declaration.getAsJsonObject(), METADATA_STRATEGY_KEY)
+                    && (!declaration.getAsJsonObject().has(METADATA_KEY_FIELD_KEY)
+                        || isPrimitiveField(declaration.getAsJsonObject(), METADATA_KEY_FIELD_KEY))) {
+                // Declared as "path" : { "strategy" : "...", "key" : "..." }
+                JsonObject declarationObj = declaration.getAsJsonObject();
+                strategyName = declarationObj.get(METADATA_STRATEGY_KEY).getAsString();
+                if (declarationObj.has(METADATA_KEY_FIELD_KEY)) {
+                    keyField = declarationObj.get(METADATA_KEY_FIELD_KEY).getAsString();
+                }
+            } else {
+                throw new RuntimeException(String.format(
+                        "Malformed Array Merge Strategy declaration for '%s': %s",
+                        jsonPath, declaration));
+            }
+
+            ArrayMergeStrategy strategy;
+            try {
+                strategy = ArrayMergeStrategy.valueOf(strategyName.toUpperCase(Locale.ENGLISH));
+            } catch (IllegalArgumentException iae) {
+                throw new RuntimeException(String.format(
+                        "Unknown Array Merge Strategy '%s' for '%s'. " +
+                            "Instead it should be one of %s.",
+                        strategyName, jsonPath, Arrays.toString(ArrayMergeStrategy.values())), iae);
+            }
+            if (ArrayMergeStrategy.MERGE_BY_KEY == strategy && null == keyField) {
+                throw new RuntimeException(String.format(
+                        "Array Merge Strategy '%s' for '%s' requires a key field",
+                        strategy, jsonPath));
+            }
+
+            strategies.put(jsonPath, strategy);
+            if (null != keyField) {
+                keyFields.put(jsonPath, keyField);
+            }
+        }
+    }
+
+    private static boolean isPrimitiveField(JsonObject obj, String field) {
+        return obj.has(field) && obj.get(field).isJsonPrimitive();
     }
 
     /**
@@ -217,6 +417,29 @@ public class JSONConfBuilder {
      * @return A JsonObject containing all the fields of A-union-B
      */
     protected static JsonObject union(JsonObject A, JsonObject B) {
+        return union(
+                A,
+                B,
+                Collections.<String, ArrayMergeStrategy>emptyMap(),
+                Collections.<String, String>emptyMap(),
+                null);
+    }
+
+    /**
+     * Algebraic Union of 2 JsonObjects, uniting arrays based on the given strategies.
+     *
+     * @param A          JsonObject "A"
+     * @param B          JsonObject "B"
+     * @param strategies Array Merge Strategies, by path (arrays not listed are replaced)
+     * @param keyFields  Key fields of the arrays merged via {@link ArrayMergeStrategy#MERGE_BY_KEY}, by path
+     * @param path       Path of A and B within the root JsonObject ("null" for the root itself)
+     * @return A JsonObject containing all the fields of A-union-B
+     */
+    protected static JsonObject union(JsonObject A,
+                                      JsonObject B,
+                                      Map<String, ArrayMergeStrategy> strategies,
+                                      Map<String, String> keyFields,
+                                      String path) {
         JsonObject result = new JsonObject();
 
         // First, copy everything from A
@@ -229,9 +452,14 @@ public class JSONConfBuilder {
             String keyB = entryB.getKey();
             JsonElement valueB = entryB.getValue();
 
+            String pathB = null == path ? keyB : path + "." + keyB;
+
             if (A.has(keyB) && (A.get(keyB).isJsonObject() && valueB.isJsonObject())) {
                 // This entry in B is also in A
-                result.add(keyB, union(A.get(keyB).getAsJsonObject(), valueB.getAsJsonObject()));
+                result.add(keyB, union(A.get(keyB).getAsJsonObject(), valueB.getAsJsonObject(), strategies, keyFields, pathB));
+            } else if (A.has(keyB) && (A.get(keyB).isJsonArray() && valueB.isJsonArray()) && strategies.containsKey(pathB)) {
+                // This array in B is also in A, and has a specific Array Merge Strategy
+                result.add(keyB, union(A.get(keyB).getAsJsonArray(), valueB.getAsJsonArray(), strategies, keyFields, pathB));
             } else {
                 // This entry in B is not in A: we just need to copy it over
                 result.add(keyB, valueB);
@@ -241,6 +469,112 @@ public class JSONConfBuilder {
         return result;
     }
 
+    /**
+     * Union of 2 JsonArrays, based on the Array Merge Strategy declared for their path.
+     *
+     * @param A          JsonArray "A"
+     * @param B          JsonArray "B"
+     * @param strategies Array Merge Strategies, by path
+     * @param keyFields  Key fields of the arrays merged via {@link ArrayMergeStrategy#MERGE_BY_KEY}, by path
+     * @param path       Path of A and B within the root JsonObject
+     * @return A JsonArray containing A-union-B
+     */
+    protected static JsonArray union(JsonArray A,
+                                     JsonArray B,
+                                     Map<String, ArrayMergeStrategy> strategies,
+                                     Map<String, String> keyFields,
+                                     String path) {
+        ArrayMergeStrategy strategy = strategies.get(path);
+        if (null == strategy) {
+            strategy = ArrayMergeStrategy.REPLACE;
+        }
+
+        JsonArray result = new JsonArray();
+        switch (strategy) {
+            case APPEND:
+                for (JsonElement elementA : A) {
+                    result.add(elementA);
+                }
+                for (JsonElement elementB : B) {
+                    result.add(elementB);
+                }
+                return result;
+
+            case MERGE_BY_INDEX:
+                for (int i = 0, ilen = Math.max(A.size(), B.size()); i < ilen; ++i) {
+                    if (i >= B.size()) {
+                        result.add(A.get(i));
+                    } else if (i >= A.size()) {
+                        result.add(B.get(i));
+                    } else {
+                        result.add(unionElements(A.get(i), B.get(i), strategies, keyFields, path));
+                    }
+                }
+                return result;
+
+            case MERGE_BY_KEY:
+                String keyField = keyFields.get(path);
+
+                // Elements of A first, indexed by key value: this avoids scanning A for every element of B
+                List<JsonElement> elements = new ArrayList<JsonElement>(A.size() + B.size());
+                Map<JsonElement, Integer> index = new HashMap<JsonElement, Integer>(A.size() * 2);
+                for (JsonElement elementA : A) {
+                    JsonElement keyA = keyOf(elementA, keyField);
+                    if (null != keyA && !index.containsKey(keyA)) {
+                        index.put(keyA, elements.size());
+                    }
+                    elements.add(elementA);
+                }
+
+                // Then, unite or append the elements of B
+                for (JsonElement elementB : B) {
+                    JsonElement keyB = keyOf(elementB, keyField);
+                    Integer idx = null == keyB ? null : index.get(keyB);
+                    if (null != idx) {
+                        elements.set(idx, unionElements(elements.get(idx), elementB, strategies, keyFields, path));
+                    } else {
+                        if (null != keyB) {
+                            index.put(keyB, elements.size());
+                        }
+                        elements.add(elementB);
+                    }
+                }
+
+                for (JsonElement element : elements) {
+                    result.add(element);
+                }
+                return result;
+
+            case REPLACE:
+            default:
+                return B;
+        }
+    }
+
+    /**
+     * Union of 2 elements of arrays being merged: Objects are united, anything else is replaced.
+     */
+    private static JsonElement unionElements(JsonElement A,
+                                             JsonElement B,
+                                             Map<String, ArrayMergeStrategy> strategies,
+                                             Map<String, String> keyFields,
+                                             String path) {
+        if (A.isJsonObject() && B.isJsonObject()) {
+            return union(A.getAsJsonObject(), B.getAsJsonObject(), strategies, keyFields, path);
+        }
+        return B;
+    }
+
+    /**
+     * Value of the key field of an array element, or "null" if the element is not an Object or has no such field.
+     */
+    private static JsonElement keyOf(JsonElement element, String keyField) {
+        if (null == keyField || !element.isJsonObject()) {
+            return null;
+        }
+        return element.getAsJsonObject().get(keyField);
+    }
+
     /**
      * Algebraic Union of "n" JsonObjects.
      *
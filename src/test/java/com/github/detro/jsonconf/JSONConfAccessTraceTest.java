@@ -0,0 +1,230 @@
+/*
+This file is part of the JSONConf project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.jsonconf;
+
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.SortedMap;
+import java.util.SortedSet;
+
+import static org.testng.Assert.*;
+
+public class JSONConfAccessTraceTest {
+
+    @Test
+    public void shouldNotTraceByDefault() {
+        JSONConf c = new JSONConfBuilder("default-config.json").build();
+
+        assertNull(c.getAccessTrace());
+        assertEquals(c.getValue("name"), "default-config");
+    }
+
+    @Test
+    public void shouldRecordReads() {
+        JSONConf c = new JSONConfBuilder("default-config.json")
+                .withAccessTracing(1)
+                .build();
+
+        // Same call site for both reads
+        for (int i = 0; i < 2; ++i) {
+            c.getValue("name");
+        }
+        c.getValue("shared.shared_field_num");
+        c.getChild("shared").getValue("shared_field_string");
+
+        SortedMap<String, JSONConfAccessTrace.PathStats> stats = c.getAccessTrace().getStats();
+        assertEquals(stats.size(), 3);
+
+        JSONConfAccessTrace.PathStats nameStats = stats.get("name");
+        assertEquals(nameStats.getReadCount(), 2);
+        assertTrue(nameStats.getFirstAccess() <= nameStats.getLastAccess());
+        assertEquals(nameStats.getCallSites().size(), 1);
+        assertTrue(nameStats.getCallSites().first().contains(JSONConfAccessTraceTest.class.getName()));
+
+        // Child reads are relative to the root
+        assertEquals(stats.get("shared.shared_field_string").getReadCount(), 1);
+
+        // Most read path first
+        List<JSONConfAccessTrace.PathStats> hotPaths = c.getAccessTrace().getHotPaths(1);
+        assertEquals(hotPaths.size(), 1);
+        assertEquals(hotPaths.get(0).getPath(), "name");
+    }
+
+    @Test
+    public void shouldMergeReadsFromMultipleThreads() throws InterruptedException {
+        final JSONConf c = new JSONConfBuilder("default-config.json")
+                .withAccessTracing(0)
+                .build();
+
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; ++i) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10; ++j) {
+                        c.getValue("shared.shared_field_num");
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        JSONConfAccessTrace.PathStats stats = c.getAccessTrace().getStats().get("shared.shared_field_num");
+        assertEquals(stats.getReadCount(), 40);
+        assertTrue(stats.getCallSites().isEmpty());
+
+        // Reads of terminated threads are still accounted for, once
+        assertEquals(c.getAccessTrace().getStats().get("shared.shared_field_num").getReadCount(), 40);
+    }
+
+    @Test
+    public void shouldRecordEquivalentPathsOnce() {
+        JSONConf c = new JSONConfBuilder("default-config.json")
+                .withAccessTracing(0)
+                .build();
+
+        c.getValue("name");
+        c.getValue("$.name");
+        c.getValue("['name']");
+        c.getValue("shared.shared_field_array[0]");
+        c.getValue("$['shared'].shared_field_array[1]");
+
+        SortedMap<String, JSONConfAccessTrace.PathStats> stats = c.getAccessTrace().getStats();
+        assertEquals(stats.size(), 3);
+        assertEquals(stats.get("name").getReadCount(), 3);
+
+        // Array elements are kept distinct
+        assertEquals(stats.get("shared.shared_field_array[0]").getReadCount(), 1);
+        assertEquals(stats.get("shared.shared_field_array[1]").getReadCount(), 1);
+    }
+
+    @Test
+    public void shouldRecordChildReadsRelativeToRoot() {
+        JSONConf c = new JSONConfBuilder("default-config.json")
+                .withAccessTracing(0)
+                .build();
+
+        JSONConf child = c.getChild("shared");
+        assertEquals(child.getValue("$.shared_field_num"), 1);
+        assertEquals(child.getValue("['shared_field_string']"), "string");
+        child.getValue("shared_field_array[2]");
+
+        SortedMap<String, JSONConfAccessTrace.PathStats> stats = c.getAccessTrace().getStats();
+        assertEquals(stats.keySet().size(), 3);
+        assertTrue(stats.containsKey("shared.shared_field_num"));
+        assertTrue(stats.containsKey("shared.shared_field_string"));
+        assertTrue(stats.containsKey("shared.shared_field_array[2]"));
+
+        SortedSet<String> unread = c.getAccessTrace().getUnreadKeys();
+        assertFalse(unread.contains("shared.shared_field_num"));
+        assertFalse(unread.contains("shared.shared_field_string"));
+        assertFalse(unread.contains("shared.shared_field_array"));
+        assertTrue(unread.contains("shared.default"));
+    }
+
+    @Test(expectedExceptions = RuntimeException.class)
+    public void shouldThrowIfAccessTracingEnabledTwice() {
+        new JSONConfBuilder("default-config.json")
+                .withAccessTracing(0)
+                .build()
+                .enableAccessTracing(0);
+    }
+
+    @Test
+    public void shouldReportUnreadKeys() {
+        JSONConf c = new JSONConfBuilder("default-config.json")
+                .withAccessTracing(0)
+                .build();
+
+        c.getValue("$.shared.shared_field_array[1]");
+        c.getValue("shared.shared_field_obj");
+        c.getValue("['shared']['default']");
+
+        SortedSet<String> unread = c.getAccessTrace().getUnreadKeys();
+        assertEquals(unread.size(), 3);
+        assertTrue(unread.contains("name"));
+        assertTrue(unread.contains("shared.shared_field_num"));
+        assertTrue(unread.contains("shared.shared_field_string"));
+    }
+
+    @Test
+    public void shouldReportUnreadKeysConservativelyForWildcardReads() {
+        JSONConf c = new JSONConfBuilder("default-config.json")
+                .withAccessTracing(0)
+                .build();
+
+        c.getValue("shared.*");
+        c.getValue("$.shared.shared_field_array[*]");
+
+        // Whole "shared" subtree might have been read
+        SortedSet<String> unread = c.getAccessTrace().getUnreadKeys();
+        assertEquals(unread.size(), 1);
+        assertTrue(unread.contains("name"));
+    }
+
+    @Test
+    public void shouldReportUnreadKeysConservativelyForDeepScanReads() {
+        JSONConf c = new JSONConfBuilder("default-config.json")
+                .withAccessTracing(0)
+                .build();
+
+        // Deep scan within a child: the child subtree might have been read
+        c.getChild("shared").getValue("$..key");
+        SortedSet<String> unread = c.getAccessTrace().getUnreadKeys();
+        assertEquals(unread.size(), 1);
+        assertTrue(unread.contains("name"));
+
+        // Deep scan from the root: the whole configuration might have been read
+        c.getValue("$..key");
+        assertTrue(c.getAccessTrace().getUnreadKeys().isEmpty());
+    }
+
+    @Test
+    public void shouldReportNoUnreadKeysAfterRootRead() {
+        JSONConf c = new JSONConfBuilder("default-config.json")
+                .withAccessTracing(0)
+                .build();
+
+        c.getValue("$");
+
+        assertTrue(c.getAccessTrace().getUnreadKeys().isEmpty());
+    }
+
+    @Test(expectedExceptions = RuntimeException.class)
+    public void shouldThrowForNegativeHotPathsLimit() {
+        JSONConf c = new JSONConfBuilder("default-config.json")
+                .withAccessTracing(0)
+                .build();
+
+        c.getAccessTrace().getHotPaths(-1);
+    }
+}
@@ -27,9 +27,12 @@ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.github.detro.jsonconf;
 
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Properties;
 
@@ -161,4 +164,101 @@ public class JSONConfBuilderTest {
                 .withCLIPropsArray(cliPropsArrayName)
                 .build();
     }
+
+    @Test
+    public void shouldMergeArraysBasedOnStrategiesDeclaredInDefaultConfiguration() {
+        JSONConf c = new JSONConfBuilder("array-merge-default-config.json", "test-fixtures/array-merge-config.json").build();
+
+        // Check the metadata section is not part of the configuration
+        assertFalse(c.getInternalJsonObject().has(JSONConfBuilder.METADATA_KEY));
+
+        // Check "append"
+        List<String> allowlist = c.getValue("allowlist");
+        assertEquals(allowlist.size(), 3);
+        assertEquals(allowlist.get(0), "alice");
+        assertEquals(allowlist.get(2), "carol");
+
+        // Check "merge_by_index"
+        List<Integer> ports = c.getValue("ports");
+        assertEquals(ports.size(), 3);
+        assertTrue(ports.get(0) == 81);
+        assertTrue(ports.get(1) == 443);
+
+        // Check "merge_by_key", with an "append" nested within the merged elements
+        List<Object> servers = c.getValue("servers");
+        assertEquals(servers.size(), 3);
+        assertEquals(c.getValue("servers[0].host"), "one.example.com");
+        assertEquals(c.getValue("servers[1].host"), "two.local");
+        assertEquals(c.getValue("servers[1].tags[0]"), "b");
+        assertEquals(c.getValue("servers[1].tags[1]"), "c");
+        assertEquals(c.getValue("servers[2].id"), "three");
+
+        // Check arrays without a declared strategy are replaced
+        List<Integer> replaced = c.getValue("replaced");
+        assertEquals(replaced.size(), 1);
+        assertTrue(replaced.get(0) == 4);
+    }
+
+    @Test
+    public void shouldMergeArraysBasedOnStrategiesDeclaredInBuilder() {
+        JSONConf c = new JSONConfBuilder("array-merge-default-config.json", "test-fixtures/array-merge-config.json")
+                .withArrayMergeStrategy("allowlist", JSONConfBuilder.ArrayMergeStrategy.REPLACE)
+                .withArrayMergeStrategy("replaced", JSONConfBuilder.ArrayMergeStrategy.APPEND)
+                .withArrayMergeByKey("servers", "host")
+                .build();
+
+        // Check builder strategies take precedence over the ones in the metadata section
+        List<String> allowlist = c.getValue("allowlist");
+        assertEquals(allowlist.size(), 1);
+        assertEquals(allowlist.get(0), "carol");
+
+        List<Integer> replaced = c.getValue("replaced");
+        assertEquals(replaced.size(), 4);
+        assertTrue(replaced.get(3) == 4);
+
+        // No "host" in common: all the elements are appended
+        List<Object> servers = c.getValue("servers");
+        assertEquals(servers.size(), 4);
+
+        // Strategies also apply to the default configuration without metadata section
+        c = new JSONConfBuilder("default-config.json", "test-fixtures/config.json")
+                .withArrayMergeStrategy("shared.shared_field_array", JSONConfBuilder.ArrayMergeStrategy.APPEND)
+                .build();
+        List<Object> sharedFieldArray = c.getValue("shared.shared_field_array");
+        assertEquals(sharedFieldArray.size(), 6);
+        assertEquals(sharedFieldArray.get(5), "two");
+    }
+
+    @Test(expectedExceptions = RuntimeException.class)
+    public void shouldThrowForMergeByKeyWithoutKeyField() {
+        new JSONConfBuilder("default-config.json")
+                .withArrayMergeStrategy("shared.shared_field_array", JSONConfBuilder.ArrayMergeStrategy.MERGE_BY_KEY);
+    }
+
+    @DataProvider(name = "provideMalformedArrayMergeMetadata")
+    public Object[][] malformedArrayMergeMetadata() {
+        return new Object[][] {
+                { "{ \"_jsonconf\" : [] }" },
+                { "{ \"_jsonconf\" : { \"arrayMerge\" : [\"append\"] } }" },
+                { "{ \"_jsonconf\" : { \"arrayMerge\" : { \"list\" : null } } }" },
+                { "{ \"_jsonconf\" : { \"arrayMerge\" : { \"list\" : { \"strategy\" : [1] } } } }" },
+                { "{ \"_jsonconf\" : { \"arrayMerge\" : { \"list\" : { \"strategy\" : \"merge_by_key\", \"key\" : {} } } } }" },
+                { "{ \"_jsonconf\" : { \"arrayMerge\" : { \"list\" : \"unknown\" } } }" }
+        };
+    }
+
+    @Test(dataProvider = "provideMalformedArrayMergeMetadata")
+    public void shouldThrowForMalformedArrayMergeMetadata(String metadata) {
+        JsonObject conf = new JsonParser().parse(metadata).getAsJsonObject();
+        try {
+            JSONConfBuilder.readArrayMergeMetadata(
+                    conf,
+                    new HashMap<String, JSONConfBuilder.ArrayMergeStrategy>(),
+                    new HashMap<String, String>());
+            fail("Expected a RuntimeException for: " + metadata);
+        } catch (RuntimeException re) {
+            // Descriptive error, not a Gson one
+            assertTrue(re.getMessage().contains("Array Merge Strategy"), re.getMessage());
+        }
+    }
 }